@@ -0,0 +1,46 @@
+package com.artem.logparser;
+
+import java.util.Calendar;
+import java.util.Date;
+
+public enum Interval {
+    HOUR(Calendar.HOUR_OF_DAY),
+    DAY(Calendar.DAY_OF_MONTH),
+    WEEK(Calendar.WEEK_OF_YEAR);
+
+    private final int calendarField;
+
+    Interval(int calendarField) {
+        this.calendarField = calendarField;
+    }
+
+    /**
+     * Returns the start of the interval that contains the given date.
+     * Weeks start on the first day of week of the default locale.
+     */
+    public Date floor(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        if (this != HOUR) {
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+        }
+        if (this == WEEK) {
+            int shift = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+            calendar.add(Calendar.DAY_OF_MONTH, -shift);
+        }
+        return calendar.getTime();
+    }
+
+    /**
+     * Returns the start of the interval that follows the one starting at the given date.
+     */
+    public Date next(Date start) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(start);
+        calendar.add(calendarField, 1);
+        return calendar.getTime();
+    }
+}
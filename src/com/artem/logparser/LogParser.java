@@ -1,10 +1,12 @@
 package com.artem.logparser;
 
+import com.artem.logparser.RecordStore.Record;
+import com.artem.logparser.analytics.SessionAnalyzer;
+import com.artem.logparser.analytics.TaskFunnel;
 import com.artem.logparser.query.*;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
@@ -12,40 +14,39 @@ import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQuery {
-    private List<Record> records;
+public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQuery, SessionQuery {
+    private RecordStore records;
     private SimpleDateFormat formatter = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
 
 
     @Override
     public Set<String> getAllUsers() {
-        Set<String> allUsers = new HashSet<>();
-        for (Record record : records) {
-            allUsers.add(record.user);
-        }
-        return allUsers;
+        return records.getUsers().getAll();
     }
 
     @Override
     public int getNumberOfUsers(Date after, Date before) {
-        Set<String> uniqueUsers = new HashSet<>();
+        BitSet uniqueUsers = new BitSet();
         for (Record record : records) {
-            if (isBetween(record.date, after, before)) {
-                uniqueUsers.add(record.user);
+            if (isBetween(record.time(), after, before)) {
+                uniqueUsers.set(record.userId());
             }
         }
-        return uniqueUsers.size();
+        return uniqueUsers.cardinality();
     }
 
     @Override
     public int getNumberOfUserEvents(String user, Date after, Date before) {
+        int userId = records.getUsers().indexOf(user);
         Set<Event> events = new HashSet<>();
         for (Record record : records) {
-            if (record.user.equals(user) && isBetween(record.date, after, before)) {
-                events.add(record.event);
+            if (record.userId() == userId && isBetween(record.time(), after, before)) {
+                events.add(record.event());
             }
         }
         return events.size();
@@ -53,100 +54,102 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
 
     @Override
     public Set<String> getUsersForIP(String ip, Date after, Date before) {
-        Set<String> users = new HashSet<>();
+        int ipId = records.getIps().indexOf(ip);
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.ip.equals(ip) && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.ipId() == ipId && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<String> getLoggedUsers(Date after, Date before) {
-        Set<String> users = new HashSet<>();
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.event.equals(Event.LOGIN) && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.event() == Event.LOGIN && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<String> getDownloadedPluginUsers(Date after, Date before) {
-        Set<String> users = new HashSet<>();
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.event.equals(Event.DOWNLOAD_PLUGIN) && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.event() == Event.DOWNLOAD_PLUGIN && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<String> getWroteMessageUsers(Date after, Date before) {
-        Set<String> users = new HashSet<>();
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.event.equals(Event.WRITE_MESSAGE) && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.event() == Event.WRITE_MESSAGE && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<String> getSolvedTaskUsers(Date after, Date before) {
-        Set<String> users = new HashSet<>();
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.event.equals(Event.SOLVE_TASK) && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.event() == Event.SOLVE_TASK && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<String> getSolvedTaskUsers(Date after, Date before, int task) {
-        Set<String> users = new HashSet<>();
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.event.equals(Event.SOLVE_TASK) &&
-                    record.taskNumber == task && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.event() == Event.SOLVE_TASK &&
+                    record.hasTaskNumber(task) && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<String> getDoneTaskUsers(Date after, Date before) {
-        Set<String> users = new HashSet<>();
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.event.equals(Event.DONE_TASK) && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.event() == Event.DONE_TASK && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<String> getDoneTaskUsers(Date after, Date before, int task) {
-        Set<String> users = new HashSet<>();
+        BitSet users = new BitSet();
         for (Record record : records) {
-            if (record.event.equals(Event.DONE_TASK) &&
-                    record.taskNumber == task && isBetween(record.date, after, before)) {
-                users.add(record.user);
+            if (record.event() == Event.DONE_TASK &&
+                    record.hasTaskNumber(task) && isBetween(record.time(), after, before)) {
+                users.set(record.userId());
             }
         }
-        return users;
+        return records.getUsers().getAll(users);
     }
 
     @Override
     public Set<Date> getDatesForUserAndEvent(String user, Event event, Date after, Date before) {
+        int userId = records.getUsers().indexOf(user);
         Set<Date> dates = new HashSet<>();
         for (Record record : records) {
-            if (record.user.equals(user) && record.event.equals(event) && isBetween(record.date, after, before)) {
-                dates.add(record.date);
+            if (record.userId() == userId && record.event() == event && isBetween(record.time(), after, before)) {
+                dates.add(record.date());
             }
         }
         return dates;
@@ -156,8 +159,8 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
     public Set<Date> getDatesWhenSomethingFailed(Date after, Date before) {
         Set<Date> dates = new HashSet<>();
         for (Record record : records) {
-            if (record.status.equals(Status.FAILED) && isBetween(record.date, after, before)) {
-                dates.add(record.date);
+            if (record.status() == Status.FAILED && isBetween(record.time(), after, before)) {
+                dates.add(record.date());
             }
         }
         return dates;
@@ -167,8 +170,8 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
     public Set<Date> getDatesWhenErrorHappened(Date after, Date before) {
         Set<Date> dates = new HashSet<>();
         for (Record record : records) {
-            if (record.status.equals(Status.ERROR) && isBetween(record.date, after, before)) {
-                dates.add(record.date);
+            if (record.status() == Status.ERROR && isBetween(record.time(), after, before)) {
+                dates.add(record.date());
             }
         }
         return dates;
@@ -176,55 +179,44 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
 
     @Override
     public Date getDateWhenUserLoggedFirstTime(String user, Date after, Date before) {
-        Date first = null;
+        int userId = records.getUsers().indexOf(user);
         for (Record record : records) {
-            if (record.user.equals(user) && record.event.equals(Event.LOGIN) && isBetween(record.date, after, before)) {
-                if (first == null) {
-                    first = record.date;
-                } else if (record.date.getTime() < first.getTime()) {
-                    first = record.date;
-                }
+            if (record.userId() == userId && record.event() == Event.LOGIN && isBetween(record.time(), after, before)) {
+                return record.date();
             }
         }
-        return first;
+        return null;
     }
 
     @Override
     public Date getDateWhenUserSolvedTask(String user, int task, Date after, Date before) {
-        Date first = null;
+        int userId = records.getUsers().indexOf(user);
         for (Record record : records) {
-            if (record.user.equals(user) && record.event.equals(Event.SOLVE_TASK) && Integer.valueOf(task).equals(record.taskNumber) && isBetween(record.date, after, before)) {
-                if (first == null) {
-                    first = record.date;
-                } else if (record.date.getTime() < first.getTime()) {
-                    first = record.date;
-                }
+            if (record.userId() == userId && record.event() == Event.SOLVE_TASK && record.hasTaskNumber(task) && isBetween(record.time(), after, before)) {
+                return record.date();
             }
         }
-        return first;
+        return null;
     }
 
     @Override
     public Date getDateWhenUserDoneTask(String user, int task, Date after, Date before) {
-        Date first = null;
+        int userId = records.getUsers().indexOf(user);
         for (Record record : records) {
-            if (record.user.equals(user) && record.event.equals(Event.DONE_TASK) && Integer.valueOf(task).equals(record.taskNumber) && isBetween(record.date, after, before)) {
-                if (first == null) {
-                    first = record.date;
-                } else if (record.date.getTime() < first.getTime()) {
-                    first = record.date;
-                }
+            if (record.userId() == userId && record.event() == Event.DONE_TASK && record.hasTaskNumber(task) && isBetween(record.time(), after, before)) {
+                return record.date();
             }
         }
-        return first;
+        return null;
     }
 
     @Override
     public Set<Date> getDatesWhenUserWroteMessage(String user, Date after, Date before) {
+        int userId = records.getUsers().indexOf(user);
         Set<Date> dates = new HashSet<>();
         for (Record record : records) {
-            if (record.user.equals(user) && record.event.equals(Event.WRITE_MESSAGE) && isBetween(record.date, after, before)) {
-                dates.add(record.date);
+            if (record.userId() == userId && record.event() == Event.WRITE_MESSAGE && isBetween(record.time(), after, before)) {
+                dates.add(record.date());
             }
         }
         return dates;
@@ -232,10 +224,11 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
 
     @Override
     public Set<Date> getDatesWhenUserDownloadedPlugin(String user, Date after, Date before) {
+        int userId = records.getUsers().indexOf(user);
         Set<Date> dates = new HashSet<>();
         for (Record record : records) {
-            if (record.user.equals(user) && record.event.equals(Event.DOWNLOAD_PLUGIN) && isBetween(record.date, after, before)) {
-                dates.add(record.date);
+            if (record.userId() == userId && record.event() == Event.DOWNLOAD_PLUGIN && isBetween(record.time(), after, before)) {
+                dates.add(record.date());
             }
         }
         return dates;
@@ -251,28 +244,30 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
     public Set<Event> getAllEvents(Date after, Date before) {
         Set<Event> events = new HashSet<>();
         for (Record record : records) {
-            if (isBetween(record.date, after, before))
-                events.add(record.event);
+            if (isBetween(record.time(), after, before))
+                events.add(record.event());
         }
         return events;
     }
 
     @Override
     public Set<Event> getEventsForIP(String ip, Date after, Date before) {
+        int ipId = records.getIps().indexOf(ip);
         Set<Event> events = new HashSet<>();
         for (Record record : records) {
-            if (record.ip.equals(ip) && isBetween(record.date, after, before))
-                events.add(record.event);
+            if (record.ipId() == ipId && isBetween(record.time(), after, before))
+                events.add(record.event());
         }
         return events;
     }
 
     @Override
     public Set<Event> getEventsForUser(String user, Date after, Date before) {
+        int userId = records.getUsers().indexOf(user);
         Set<Event> events = new HashSet<>();
         for (Record record : records) {
-            if (record.user.equals(user) && isBetween(record.date, after, before))
-                events.add(record.event);
+            if (record.userId() == userId && isBetween(record.time(), after, before))
+                events.add(record.event());
         }
         return events;
     }
@@ -281,8 +276,8 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
     public Set<Event> getFailedEvents(Date after, Date before) {
         Set<Event> events = new HashSet<>();
         for (Record record : records) {
-            if (record.status.equals(Status.FAILED) && isBetween(record.date, after, before))
-                events.add(record.event);
+            if (record.status() == Status.FAILED && isBetween(record.time(), after, before))
+                events.add(record.event());
         }
         return events;
     }
@@ -291,41 +286,42 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
     public Set<Event> getErrorEvents(Date after, Date before) {
         Set<Event> events = new HashSet<>();
         for (Record record : records) {
-            if (record.status.equals(Status.ERROR) && isBetween(record.date, after, before))
-                events.add(record.event);
+            if (record.status() == Status.ERROR && isBetween(record.time(), after, before))
+                events.add(record.event());
         }
         return events;
     }
 
     @Override
     public int getNumberOfAttemptToSolveTask(int task, Date after, Date before) {
-        ArrayList<Event> attempts = new ArrayList<>();
+        int attempts = 0;
         for (Record record : records) {
-            if (record.event.equals(Event.SOLVE_TASK) && Integer.valueOf(task).equals(record.taskNumber) && isBetween(record.date, after, before))
-                attempts.add(record.event);
+            if (record.event() == Event.SOLVE_TASK && record.hasTaskNumber(task) && isBetween(record.time(), after, before))
+                attempts++;
         }
-        return attempts.size();
+        return attempts;
     }
 
     @Override
     public int getNumberOfSuccessfulAttemptToSolveTask(int task, Date after, Date before) {
-        ArrayList<Event> attempts = new ArrayList<>();
+        int attempts = 0;
         for (Record record : records) {
-            if (record.event.equals(Event.DONE_TASK) && Integer.valueOf(task).equals(record.taskNumber) && isBetween(record.date, after, before))
-                attempts.add(record.event);
+            if (record.event() == Event.DONE_TASK && record.hasTaskNumber(task) && isBetween(record.time(), after, before))
+                attempts++;
         }
-        return attempts.size();
+        return attempts;
     }
 
     @Override
     public Map<Integer, Integer> getAllSolvedTasksAndTheirNumber(Date after, Date before) {
         Map<Integer, Integer> map = new HashMap<>();
         for (Record record : records) {
-            if (record.event.equals(Event.SOLVE_TASK) && record.taskNumber != null && isBetween(record.date, after, before)) {
-                if (map.containsKey(record.taskNumber)) {
-                    map.put(record.taskNumber, map.get(record.taskNumber) + 1);
+            Integer taskNumber = record.taskNumber();
+            if (record.event() == Event.SOLVE_TASK && taskNumber != null && isBetween(record.time(), after, before)) {
+                if (map.containsKey(taskNumber)) {
+                    map.put(taskNumber, map.get(taskNumber) + 1);
                 } else {
-                    map.put(record.taskNumber, 1);
+                    map.put(taskNumber, 1);
                 }
             }
 
@@ -337,11 +333,12 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
     public Map<Integer, Integer> getAllDoneTasksAndTheirNumber(Date after, Date before) {
         Map<Integer, Integer> map = new HashMap<>();
         for (Record record : records) {
-            if (record.event.equals(Event.DONE_TASK) && record.taskNumber != null && isBetween(record.date, after, before)) {
-                if (map.containsKey(record.taskNumber)) {
-                    map.put(record.taskNumber, map.get(record.taskNumber) + 1);
+            Integer taskNumber = record.taskNumber();
+            if (record.event() == Event.DONE_TASK && taskNumber != null && isBetween(record.time(), after, before)) {
+                if (map.containsKey(taskNumber)) {
+                    map.put(taskNumber, map.get(taskNumber) + 1);
                 } else {
-                    map.put(record.taskNumber, 1);
+                    map.put(taskNumber, 1);
                 }
             }
 
@@ -349,6 +346,48 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
         return map;
     }
 
+    @Override
+    public SortedMap<Date, Integer> getNumberOfEventsPerInterval(Interval interval, Date after, Date before) {
+        return sumPerInterval(countPerInterval(interval, after, before, record -> true, record -> record.event()));
+    }
+
+    @Override
+    public SortedMap<Date, Map<Event, Integer>> getNumberOfEventsPerIntervalByEvent(Interval interval, Date after, Date before) {
+        return countPerInterval(interval, after, before, record -> true, record -> record.event());
+    }
+
+    @Override
+    public SortedMap<Date, Map<Status, Integer>> getNumberOfEventsPerIntervalByStatus(Interval interval, Date after, Date before) {
+        return countPerInterval(interval, after, before, record -> true, record -> record.status());
+    }
+
+    @Override
+    public SortedMap<Date, Integer> getNumberOfDatesForUserAndEventPerInterval(String user, Event event, Interval interval, Date after, Date before) {
+        int userId = records.getUsers().indexOf(user);
+        return sumPerInterval(countPerInterval(interval, after, before,
+                record -> record.userId() == userId && record.event() == event, record -> record.event()));
+    }
+
+    @Override
+    public int getNumberOfSessions(long inactivityGap, Date after, Date before) {
+        return analyzeSessions(inactivityGap, after, before).getNumberOfSessions();
+    }
+
+    @Override
+    public Map<String, Integer> getNumberOfSessionsPerUser(long inactivityGap, Date after, Date before) {
+        return analyzeSessions(inactivityGap, after, before).getNumberOfSessionsPerUser();
+    }
+
+    @Override
+    public long getAverageSessionDuration(long inactivityGap, Date after, Date before) {
+        return analyzeSessions(inactivityGap, after, before).getAverageSessionDuration();
+    }
+
+    @Override
+    public Map<Integer, TaskFunnel> getTaskFunnels(long inactivityGap, Date after, Date before) {
+        return analyzeSessions(inactivityGap, after, before).getTaskFunnels();
+    }
+
     @Override
     public Set<Object> execute(String query) {
         Set<Object> set = new HashSet<>();
@@ -356,19 +395,22 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
 
         Pattern pattern = Pattern.compile("get (ip|user|date|event|status)"
                 + "( for (ip|user|date|event|status) = \"(.*?)\")?"
-                + "( and date between \"(.*?)\"? and \"(.*?)\")?");
+                + "( and date between \"(.*?)\"? and \"(.*?)\")?"
+                + "( by (hour|day|week))?");
         Matcher matcher = pattern.matcher(query);
         String field1 = null;
         String field2 = null;
         String value = null;
         String after = null;
         String before = null;
+        String interval = null;
         if (matcher.find()) {
             field1 = matcher.group(1);
             field2 = matcher.group(3);
             value = matcher.group(4);
             after = matcher.group(6);
             before = matcher.group(7);
+            interval = matcher.group(9);
         }
         if (field1 == null) return null;
         if (field2 == null) field2 = field1;
@@ -385,53 +427,33 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
             e.printStackTrace();
         }
 
+        if (interval != null) {
+            return executePerInterval(field1, field2, value, Interval.valueOf(interval.toUpperCase()), dateAfter, dateBefore);
+        }
 
         if (query.split(" ").length == 2) {
-            for (Record record : records) {
-                switch (query) {
-                    case "get ip":
-                        set.add(record.ip);
-                        break;
-                    case "get user":
-                        set.add(record.user);
-                        break;
-                    case "get date":
-                        set.add(record.date);
-                        break;
-                    case "get event":
-                        set.add(record.event);
-                        break;
-                    case "get status":
-                        set.add(record.status);
-                        break;
-                }
+            switch (query) {
+                case "get ip":
+                    set.addAll(records.getIps().getAll());
+                    break;
+                case "get user":
+                    set.addAll(records.getUsers().getAll());
+                    break;
+                default:
+                    for (Record record : records) {
+                        set.add(getFieldValue(record, field1));
+                    }
+                    break;
             }
             return set;
         } else {
             try {
+                Predicate<Record> filter = getFieldFilter(field2, value);
                 for (Record record : records) {
-                    Field[] fields = record.getClass().getDeclaredFields();
-                    if (field2.equals("ip") && record.ip.equals(value)
-                            && isBetween(record.date, dateAfter, dateBefore)) {
-                        set.add(record.getClass().getDeclaredField(field1).get(record));
-                    } else if (field2.equals("user") && record.user.equals(value)
-                            && isBetween(record.date, dateAfter, dateBefore)) {
-                        set.add(record.getClass().getDeclaredField(field1).get(record));
-                    } else if (field2.equals("date") && record.date.equals(formatter.parse(value))
-                            && isBetween(record.date, dateAfter, dateBefore)) {
-                        set.add(record.getClass().getDeclaredField(field1).get(record));
-                    } else if (field2.equals("event") && record.event.equals(Event.valueOf(value))
-                            && isBetween(record.date, dateAfter, dateBefore)) {
-                        set.add(record.getClass().getDeclaredField(field1).get(record));
-                    } else if (field2.equals("status") && record.status.equals(Status.valueOf(value))
-                            && isBetween(record.date, dateAfter, dateBefore)) {
-                        set.add(record.getClass().getDeclaredField(field1).get(record));
+                    if (filter.test(record) && isBetween(record.time(), dateAfter, dateBefore)) {
+                        set.add(getFieldValue(record, field1));
                     }
                 }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (NoSuchFieldException e) {
-                e.printStackTrace();
             } catch (ParseException e) {
                 e.printStackTrace();
             }
@@ -439,31 +461,158 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
         }
     }
 
-    private class Record {
-        String ip;
-        String user;
-        Date date;
-        Event event;
-        Integer taskNumber;
-        Status status;
+    private SessionAnalyzer analyzeSessions(long inactivityGap, Date after, Date before) {
+        SessionAnalyzer analyzer = new SessionAnalyzer(inactivityGap);
+        String[] users = new String[records.getUsers().size()];
+        Record record = records.newRecord();
+        int to = indexOfFirstNotBefore(before);
+        for (int i = indexOfFirstAfter(after); i < to; i++) {
+            record.moveTo(i);
+            int userId = record.userId();
+            if (users[userId] == null) {
+                users[userId] = record.user();
+            }
+            analyzer.accept(users[userId], record.time(), record.event(), record.taskNumber(), record.status());
+        }
+        analyzer.finish();
+        return analyzer;
+    }
+
+    private Set<Object> executePerInterval(String field, String filterField, String filterValue,
+                                           Interval interval, Date after, Date before) {
+        Set<Object> set = new LinkedHashSet<>();
+        Predicate<Record> filter;
+        try {
+            filter = filterValue == null ? record -> true : getFieldFilter(filterField, filterValue);
+        } catch (ParseException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return set;
+        }
+        if (field.equals("date")) {
+            set.addAll(sumPerInterval(countPerInterval(interval, after, before, filter, record -> record.event())).entrySet());
+        } else {
+            set.addAll(countPerInterval(interval, after, before, filter, record -> getFieldValue(record, field)).entrySet());
+        }
+        return set;
+    }
+
+    private Predicate<Record> getFieldFilter(String field, String value) throws ParseException {
+        switch (field) {
+            case "ip":
+                int ipId = records.getIps().indexOf(value);
+                return record -> record.ipId() == ipId;
+            case "user":
+                int userId = records.getUsers().indexOf(value);
+                return record -> record.userId() == userId;
+            case "date":
+                long time = formatter.parse(value).getTime();
+                return record -> record.time() == time;
+            case "event":
+                Event event = Event.valueOf(value);
+                return record -> record.event() == event;
+            case "status":
+                Status status = Status.valueOf(value);
+                return record -> record.status() == status;
+            default:
+                throw new IllegalArgumentException(field);
+        }
+    }
+
+    private Object getFieldValue(Record record, String field) {
+        switch (field) {
+            case "ip":
+                return record.ip();
+            case "user":
+                return record.user();
+            case "date":
+                return record.date();
+            case "event":
+                return record.event();
+            case "status":
+                return record.status();
+            default:
+                throw new IllegalArgumentException(field);
+        }
+    }
+
+    /**
+     * Counts records matching the filter per interval, split by the given key, in a single pass
+     * over the date-sorted records. Every interval of the range is present, empty ones included.
+     */
+    private <K> SortedMap<Date, Map<K, Integer>> countPerInterval(Interval interval, Date after, Date before,
+                                                                  Predicate<Record> filter, Function<Record, K> key) {
+        SortedMap<Date, Map<K, Integer>> histogram = new TreeMap<>();
+        int from = indexOfFirstAfter(after);
+        int to = indexOfFirstNotBefore(before);
+        if ((after == null || before == null) && from >= to) return histogram;
+        if (after != null && before != null && !after.before(before)) return histogram;
+
+        Date start = interval.floor(after != null ? after : new Date(records.getDate(from)));
+        Date end = before != null ? before : new Date(records.getDate(to - 1) + 1);
+        Record record = records.newRecord();
+        int i = from;
+        for (Date bucket = start; bucket.before(end); ) {
+            Date next = interval.next(bucket);
+            Map<K, Integer> counts = new HashMap<>();
+            for (; i < to && records.getDate(i) < next.getTime(); i++) {
+                record.moveTo(i);
+                if (filter.test(record)) {
+                    counts.merge(key.apply(record), 1, Integer::sum);
+                }
+            }
+            histogram.put(bucket, counts);
+            bucket = next;
+        }
+        return histogram;
+    }
+
+    private <K> SortedMap<Date, Integer> sumPerInterval(SortedMap<Date, Map<K, Integer>> histogram) {
+        SortedMap<Date, Integer> totals = new TreeMap<>();
+        for (Map.Entry<Date, Map<K, Integer>> entry : histogram.entrySet()) {
+            int total = 0;
+            for (int count : entry.getValue().values()) {
+                total += count;
+            }
+            totals.put(entry.getKey(), total);
+        }
+        return totals;
+    }
 
-        @Override
-        public String toString() {
-            return "Record{" +
-                    "ip='" + ip + '\'' +
-                    ", user='" + user + '\'' +
-                    ", date=" + date +
-                    ", event=" + event +
-                    ", taskNumber=" + taskNumber +
-                    ", status=" + status +
-                    '}';
+    private int indexOfFirstAfter(Date after) {
+        if (after == null) return 0;
+        int low = 0;
+        int high = records.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (records.getDate(middle) > after.getTime()) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private int indexOfFirstNotBefore(Date before) {
+        if (before == null) return records.size();
+        int low = 0;
+        int high = records.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (records.getDate(middle) < before.getTime()) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
+        return low;
     }
 
     public LogParser(Path logDir) {
-        records = new ArrayList<>();
+        records = new RecordStore();
 
         readRecords(logDir);
+        records.sort();
     }
 
     private void readRecords(Path logDir) {
@@ -472,24 +621,21 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
                 if (Files.isRegularFile(log) && log.toString().endsWith(".log")) {
                     BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8);
                     while (reader.ready()) {
-                        Record record = new Record();
                         String[] entry = reader.readLine().split("\t");
-                        record.ip = entry[0];
-                        record.user = entry[1];
-                        record.date = formatter.parse(entry[2]);
+                        Event event;
+                        Integer taskNumber;
 
                         if (entry[3].indexOf(' ') == -1) {
-                            record.event = Event.valueOf(entry[3]);
-                            record.taskNumber = null;
+                            event = Event.valueOf(entry[3]);
+                            taskNumber = null;
                         } else {
-                            String[] event = entry[3].split(" ");
-                            record.event = Event.valueOf(event[0]);
-                            record.taskNumber = Integer.parseInt(event[1]);
+                            String[] eventAndTask = entry[3].split(" ");
+                            event = Event.valueOf(eventAndTask[0]);
+                            taskNumber = Integer.parseInt(eventAndTask[1]);
                         }
 
-                        record.status = Status.valueOf(entry[4]);
-
-                        records.add(record);
+                        records.add(entry[0], entry[1], formatter.parse(entry[2]).getTime(),
+                                event, taskNumber, Status.valueOf(entry[4]));
                     }
                     reader.close();
                 } else {
@@ -503,21 +649,9 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
         }
     }
 
-    private Set<Record> getFilteredEntries(Date after, Date before) {
-
-        Set<Record> filteredRecords = new HashSet<>();
-        for (Record record : records) {
-            if (isBetween(record.date, after, before)) {
-                filteredRecords.add(record);
-            }
-        }
-
-        return filteredRecords;
-    }
-
-    private boolean isBetween(Date date, Date after, Date before) {
-        return (after == null || date.after(after)) &&
-                (before == null || date.before(before));
+    private boolean isBetween(long date, Date after, Date before) {
+        return (after == null || date > after.getTime()) &&
+                (before == null || date < before.getTime());
     }
 
     @Override
@@ -529,52 +663,50 @@ public class LogParser implements IPQuery, UserQuery, DateQuery, EventQuery, QLQ
 
     @Override
     public Set<String> getUniqueIPs(Date after, Date before) {
-        Set<Record> filteredRecords = getFilteredEntries(after, before);
-        Set<String> ips = new HashSet<>();
+        BitSet ips = new BitSet();
 
-        for (Record record : filteredRecords) {
-            ips.add(record.ip);
+        for (Record record : records) {
+            if (isBetween(record.time(), after, before))
+                ips.set(record.ipId());
         }
 
-        return ips;
+        return records.getIps().getAll(ips);
     }
 
     @Override
     public Set<String> getIPsForUser(String user, Date after, Date before) {
-        Set<Record> filteredRecords = getFilteredEntries(after, before);
-        Set<String> ips = new HashSet<>();
+        int userId = records.getUsers().indexOf(user);
+        BitSet ips = new BitSet();
 
-        for (Record record : filteredRecords) {
-            if (record.user.equals(user))
-                ips.add(record.ip);
+        for (Record record : records) {
+            if (record.userId() == userId && isBetween(record.time(), after, before))
+                ips.set(record.ipId());
         }
 
-        return ips;
+        return records.getIps().getAll(ips);
     }
 
     @Override
     public Set<String> getIPsForEvent(Event event, Date after, Date before) {
-        Set<Record> filteredRecords = getFilteredEntries(after, before);
-        Set<String> ips = new HashSet<>();
+        BitSet ips = new BitSet();
 
-        for (Record record : filteredRecords) {
-            if (record.event.equals(event))
-                ips.add(record.ip);
+        for (Record record : records) {
+            if (record.event() == event && isBetween(record.time(), after, before))
+                ips.set(record.ipId());
         }
 
-        return ips;
+        return records.getIps().getAll(ips);
     }
 
     @Override
     public Set<String> getIPsForStatus(Status status, Date after, Date before) {
-        Set<Record> filteredRecords = getFilteredEntries(after, before);
-        Set<String> ips = new HashSet<>();
+        BitSet ips = new BitSet();
 
-        for (Record record : filteredRecords) {
-            if (record.status.equals(status))
-                ips.add(record.ip);
+        for (Record record : records) {
+            if (record.status() == status && isBetween(record.time(), after, before))
+                ips.set(record.ipId());
         }
 
-        return ips;
+        return records.getIps().getAll(ips);
     }
 }
\ No newline at end of file
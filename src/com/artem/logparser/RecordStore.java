@@ -0,0 +1,252 @@
+package com.artem.logparser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Off-heap storage of parsed log records. Every record is a fixed-width row in a chunk of direct
+ * memory, and ips and users are kept as ids of off-heap {@link StringDictionary} entries, so the
+ * garbage collector sees a few hundred buffers instead of millions of records, dates and strings.
+ * Rows are read through the {@link Record} flyweight.
+ */
+class RecordStore implements Iterable<RecordStore.Record> {
+    private static final int ROW_SIZE = 24;
+    private static final int DATE_OFFSET = 0;
+    private static final int IP_OFFSET = 8;
+    private static final int USER_OFFSET = 12;
+    private static final int TASK_OFFSET = 16;
+    private static final int EVENT_OFFSET = 20;
+    private static final int STATUS_OFFSET = 21;
+    private static final int NO_TASK = Integer.MIN_VALUE;
+
+    private static final int CHUNK_SHIFT = 18;
+    private static final int ROWS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int ROW_MASK = ROWS_PER_CHUNK - 1;
+    private static final int SORTED_RUN = 32;
+
+    private static final Event[] EVENTS = Event.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final StringDictionary ips = new StringDictionary();
+    private final StringDictionary users = new StringDictionary();
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private int size;
+
+    void add(String ip, String user, long date, Event event, Integer taskNumber, Status status) {
+        if ((size & ROW_MASK) == 0) {
+            chunks.add(allocateChunk());
+        }
+        ByteBuffer chunk = chunks.get(size >>> CHUNK_SHIFT);
+        int offset = (size & ROW_MASK) * ROW_SIZE;
+        chunk.putLong(offset + DATE_OFFSET, date);
+        chunk.putInt(offset + IP_OFFSET, ips.add(ip));
+        chunk.putInt(offset + USER_OFFSET, users.add(user));
+        chunk.putInt(offset + TASK_OFFSET, taskNumber == null ? NO_TASK : taskNumber);
+        chunk.put(offset + EVENT_OFFSET, (byte) event.ordinal());
+        chunk.put(offset + STATUS_OFFSET, (byte) status.ordinal());
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getDate(int row) {
+        return chunks.get(row >>> CHUNK_SHIFT).getLong((row & ROW_MASK) * ROW_SIZE + DATE_OFFSET);
+    }
+
+    StringDictionary getIps() {
+        return ips;
+    }
+
+    StringDictionary getUsers() {
+        return users;
+    }
+
+    /**
+     * Returns a flyweight that is not positioned at any row yet.
+     */
+    Record newRecord() {
+        return new Record();
+    }
+
+    /**
+     * Returns an iterator that moves a single flyweight over all rows;
+     * the returned record must not be kept after the next call.
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<Record>() {
+            private final Record record = new Record();
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public Record next() {
+                if (row >= size) throw new NoSuchElementException();
+                return record.moveTo(row++);
+            }
+        };
+    }
+
+    /**
+     * Stable sort of the rows by date. Short runs are insertion-sorted in place
+     * and then merged bottom-up through a second set of chunks.
+     */
+    void sort() {
+        if (isSorted()) return;
+        for (int low = 0; low < size; low += SORTED_RUN) {
+            insertionSort(low, Math.min(low + SORTED_RUN, size));
+        }
+        List<ByteBuffer> source = chunks;
+        List<ByteBuffer> target = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            target.add(allocateChunk());
+        }
+        for (long width = SORTED_RUN; width < size; width *= 2) {
+            for (long low = 0; low < size; low += 2 * width) {
+                int middle = (int) Math.min(low + width, size);
+                int high = (int) Math.min(low + 2 * width, size);
+                merge(source, target, (int) low, middle, high);
+            }
+            List<ByteBuffer> merged = target;
+            target = source;
+            source = merged;
+        }
+        chunks = source;
+    }
+
+    private boolean isSorted() {
+        for (int row = 1; row < size; row++) {
+            if (getDate(row - 1) > getDate(row)) return false;
+        }
+        return true;
+    }
+
+    private void insertionSort(int low, int high) {
+        for (int i = low + 1; i < high; i++) {
+            for (int j = i; j > low && getDate(j - 1) > getDate(j); j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private void swap(int first, int second) {
+        ByteBuffer firstChunk = chunks.get(first >>> CHUNK_SHIFT);
+        ByteBuffer secondChunk = chunks.get(second >>> CHUNK_SHIFT);
+        int firstOffset = (first & ROW_MASK) * ROW_SIZE;
+        int secondOffset = (second & ROW_MASK) * ROW_SIZE;
+        for (int i = 0; i < ROW_SIZE; i += 8) {
+            long value = firstChunk.getLong(firstOffset + i);
+            firstChunk.putLong(firstOffset + i, secondChunk.getLong(secondOffset + i));
+            secondChunk.putLong(secondOffset + i, value);
+        }
+    }
+
+    private void merge(List<ByteBuffer> source, List<ByteBuffer> target, int low, int middle, int high) {
+        int left = low;
+        int right = middle;
+        for (int row = low; row < high; row++) {
+            if (right >= high || (left < middle && date(source, left) <= date(source, right))) {
+                copy(source, left++, target, row);
+            } else {
+                copy(source, right++, target, row);
+            }
+        }
+    }
+
+    private static long date(List<ByteBuffer> chunks, int row) {
+        return chunks.get(row >>> CHUNK_SHIFT).getLong((row & ROW_MASK) * ROW_SIZE + DATE_OFFSET);
+    }
+
+    private static void copy(List<ByteBuffer> source, int sourceRow, List<ByteBuffer> target, int targetRow) {
+        ByteBuffer sourceChunk = source.get(sourceRow >>> CHUNK_SHIFT);
+        ByteBuffer targetChunk = target.get(targetRow >>> CHUNK_SHIFT);
+        int sourceOffset = (sourceRow & ROW_MASK) * ROW_SIZE;
+        int targetOffset = (targetRow & ROW_MASK) * ROW_SIZE;
+        for (int i = 0; i < ROW_SIZE; i += 8) {
+            targetChunk.putLong(targetOffset + i, sourceChunk.getLong(sourceOffset + i));
+        }
+    }
+
+    private static ByteBuffer allocateChunk() {
+        return ByteBuffer.allocateDirect(ROWS_PER_CHUNK * ROW_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Flyweight view of a single row. Ips and users are exposed both as dictionary ids,
+     * for cheap comparisons, and as decoded strings.
+     */
+    class Record {
+        private ByteBuffer chunk;
+        private int offset;
+
+        Record moveTo(int row) {
+            chunk = chunks.get(row >>> CHUNK_SHIFT);
+            offset = (row & ROW_MASK) * ROW_SIZE;
+            return this;
+        }
+
+        long time() {
+            return chunk.getLong(offset + DATE_OFFSET);
+        }
+
+        Date date() {
+            return new Date(time());
+        }
+
+        int ipId() {
+            return chunk.getInt(offset + IP_OFFSET);
+        }
+
+        String ip() {
+            return ips.get(ipId());
+        }
+
+        int userId() {
+            return chunk.getInt(offset + USER_OFFSET);
+        }
+
+        String user() {
+            return users.get(userId());
+        }
+
+        Event event() {
+            return EVENTS[chunk.get(offset + EVENT_OFFSET)];
+        }
+
+        Integer taskNumber() {
+            int task = chunk.getInt(offset + TASK_OFFSET);
+            return task == NO_TASK ? null : task;
+        }
+
+        boolean hasTaskNumber(int task) {
+            return chunk.getInt(offset + TASK_OFFSET) == task && task != NO_TASK;
+        }
+
+        Status status() {
+            return STATUSES[chunk.get(offset + STATUS_OFFSET)];
+        }
+
+        @Override
+        public String toString() {
+            return "Record{" +
+                    "ip='" + ip() + '\'' +
+                    ", user='" + user() + '\'' +
+                    ", date=" + date() +
+                    ", event=" + event() +
+                    ", taskNumber=" + taskNumber() +
+                    ", status=" + status() +
+                    '}';
+        }
+    }
+}
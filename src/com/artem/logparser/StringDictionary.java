@@ -0,0 +1,152 @@
+package com.artem.logparser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Off-heap dictionary that maps distinct strings to dense int ids.
+ * The UTF-8 bytes, their offsets and the open-addressing hash table all live in direct buffers,
+ * so the heap only holds the strings that are handed out by {@link #get(int)}.
+ */
+class StringDictionary {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private ByteBuffer bytes = allocate(INITIAL_CAPACITY * 16);
+    private IntBuffer offsets = allocate(INITIAL_CAPACITY * 4).asIntBuffer();
+    private IntBuffer table = allocate(INITIAL_CAPACITY * 2 * 4).asIntBuffer();
+    private int size;
+
+    /**
+     * Returns the id of the string, adding it to the dictionary if it is not there yet.
+     */
+    int add(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(encoded);
+        int entry = table.get(slot);
+        if (entry != 0) return entry - 1;
+
+        ensureBytes(encoded.length);
+        ensureOffsets();
+        offsets.put(size, bytes.position());
+        bytes.put(encoded);
+        table.put(slot, ++size);
+        if (size * 2 > table.capacity()) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * Returns the id of the string or -1 if the dictionary does not contain it.
+     */
+    int indexOf(String value) {
+        if (value == null) return -1;
+        return table.get(findSlot(value.getBytes(StandardCharsets.UTF_8))) - 1;
+    }
+
+    String get(int id) {
+        int offset = offsets.get(id);
+        byte[] encoded = new byte[end(id) - offset];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = bytes.get(offset + i);
+        }
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    Set<String> getAll() {
+        Set<String> values = new HashSet<>();
+        for (int id = 0; id < size; id++) {
+            values.add(get(id));
+        }
+        return values;
+    }
+
+    Set<String> getAll(BitSet ids) {
+        Set<String> values = new HashSet<>();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            values.add(get(id));
+        }
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int end(int id) {
+        return id + 1 < size ? offsets.get(id + 1) : bytes.position();
+    }
+
+    private int findSlot(byte[] encoded) {
+        int mask = table.capacity() - 1;
+        int slot = hash(encoded) & mask;
+        while (true) {
+            int entry = table.get(slot);
+            if (entry == 0 || matches(entry - 1, encoded)) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean matches(int id, byte[] encoded) {
+        int offset = offsets.get(id);
+        if (end(id) - offset != encoded.length) return false;
+        for (int i = 0; i < encoded.length; i++) {
+            if (bytes.get(offset + i) != encoded[i]) return false;
+        }
+        return true;
+    }
+
+    private int hash(byte[] encoded) {
+        int hash = 0;
+        for (byte b : encoded) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private int hash(int id) {
+        int offset = offsets.get(id);
+        int hash = 0;
+        for (int i = offset, end = end(id); i < end; i++) {
+            hash = 31 * hash + bytes.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private void ensureBytes(int length) {
+        if (bytes.remaining() >= length) return;
+        ByteBuffer grown = allocate(Math.max(bytes.capacity() * 2, bytes.position() + length));
+        bytes.flip();
+        grown.put(bytes);
+        bytes = grown;
+    }
+
+    private void ensureOffsets() {
+        if (size < offsets.capacity()) return;
+        IntBuffer grown = allocate(offsets.capacity() * 2 * 4).asIntBuffer();
+        offsets.clear();
+        grown.put(offsets);
+        offsets = grown;
+    }
+
+    private void rehash() {
+        table = allocate(table.capacity() * 2 * 4).asIntBuffer();
+        int mask = table.capacity() - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(id) & mask;
+            while (table.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table.put(slot, id + 1);
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+}
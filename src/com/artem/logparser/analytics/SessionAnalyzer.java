@@ -0,0 +1,173 @@
+package com.artem.logparser.analytics;
+
+import com.artem.logparser.Event;
+import com.artem.logparser.Status;
+
+import java.util.*;
+
+/**
+ * Groups each user's records into sessions and builds task funnels in a single pass.
+ * Records must be accepted in time order. A session ends when its user has been inactive
+ * for longer than the inactivity gap; only users with an open session are kept in memory,
+ * so the analyzer can be fed while records are still being read.
+ */
+public class SessionAnalyzer {
+    private final long inactivityGap;
+    private final LinkedHashMap<String, Session> openSessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, TaskFunnel> funnels = new TreeMap<>();
+    private final Map<String, Integer> sessionsPerUser = new HashMap<>();
+    private int sessions;
+    private long totalSessionDuration;
+    private long lastTime = Long.MIN_VALUE;
+
+    public SessionAnalyzer(long inactivityGap) {
+        if (inactivityGap < 0) {
+            throw new IllegalArgumentException("Inactivity gap must not be negative: " + inactivityGap);
+        }
+        this.inactivityGap = inactivityGap;
+    }
+
+    public void accept(String user, Date date, Event event, Integer taskNumber, Status status) {
+        accept(user, date.getTime(), event, taskNumber, status);
+    }
+
+    public void accept(String user, long time, Event event, Integer taskNumber, Status status) {
+        if (time < lastTime) {
+            throw new IllegalArgumentException("Records must be accepted in time order: " + new Date(time));
+        }
+        lastTime = time;
+        closeInactiveSessions(time);
+
+        Session session = openSessions.get(user);
+        if (session == null) {
+            session = new Session(user, time);
+            openSessions.put(user, session);
+        }
+        session.last = time;
+
+        if (taskNumber != null) {
+            if (event == Event.SOLVE_TASK) {
+                acceptSolve(session, taskNumber, time, status);
+            } else if (event == Event.DONE_TASK) {
+                acceptDone(session, taskNumber, time, status);
+            }
+        }
+    }
+
+    /**
+     * Closes all open sessions. Call it once the last record has been accepted.
+     */
+    public void finish() {
+        for (Session session : openSessions.values()) {
+            close(session);
+        }
+        openSessions.clear();
+    }
+
+    public int getNumberOfSessions() {
+        return sessions;
+    }
+
+    public Map<String, Integer> getNumberOfSessionsPerUser() {
+        return Collections.unmodifiableMap(sessionsPerUser);
+    }
+
+    /**
+     * Average session duration in milliseconds, from the first to the last record of a session.
+     */
+    public long getAverageSessionDuration() {
+        return sessions == 0 ? 0 : totalSessionDuration / sessions;
+    }
+
+    public Map<Integer, TaskFunnel> getTaskFunnels() {
+        return Collections.unmodifiableMap(funnels);
+    }
+
+    private void acceptSolve(Session session, int task, long time, Status status) {
+        TaskFunnel funnel = getFunnel(task);
+        Attempt attempt = session.startAttempt(task, time, funnel);
+        funnel.solveAttempts++;
+        if (status != Status.OK) {
+            funnel.failedAttempts++;
+            attempt.failures++;
+        }
+    }
+
+    private void acceptDone(Session session, int task, long time, Status status) {
+        TaskFunnel funnel = getFunnel(task);
+        if (status != Status.OK) {
+            Attempt attempt = session.startAttempt(task, time, funnel);
+            funnel.failedAttempts++;
+            attempt.failures++;
+            return;
+        }
+        Attempt attempt = session.attempts.remove(task);
+        if (attempt == null) {
+            funnel.completedWithoutAttempt++;
+        } else {
+            funnel.completed++;
+            funnel.totalTimeToDone += time - attempt.start;
+            funnel.retriesBeforeDone += attempt.failures;
+        }
+    }
+
+    private TaskFunnel getFunnel(int task) {
+        TaskFunnel funnel = funnels.get(task);
+        if (funnel == null) {
+            funnel = new TaskFunnel(task);
+            funnels.put(task, funnel);
+        }
+        return funnel;
+    }
+
+    private void closeInactiveSessions(long time) {
+        Iterator<Session> iterator = openSessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            if (time - session.last <= inactivityGap) break;
+            close(session);
+            iterator.remove();
+        }
+    }
+
+    private void close(Session session) {
+        sessions++;
+        totalSessionDuration += session.last - session.start;
+        sessionsPerUser.merge(session.user, 1, Integer::sum);
+        for (Integer task : session.attempts.keySet()) {
+            funnels.get(task).abandoned++;
+        }
+    }
+
+    private static class Session {
+        final String user;
+        final long start;
+        long last;
+        final Map<Integer, Attempt> attempts = new HashMap<>();
+
+        Session(String user, long start) {
+            this.user = user;
+            this.start = start;
+            this.last = start;
+        }
+
+        Attempt startAttempt(int task, long time, TaskFunnel funnel) {
+            Attempt attempt = attempts.get(task);
+            if (attempt == null) {
+                attempt = new Attempt(time);
+                attempts.put(task, attempt);
+                funnel.started++;
+            }
+            return attempt;
+        }
+    }
+
+    private static class Attempt {
+        final long start;
+        int failures;
+
+        Attempt(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.artem.logparser.analytics;
+
+/**
+ * Solve-attempt to done funnel of a single task, aggregated over all sessions.
+ */
+public class TaskFunnel {
+    private final int task;
+    int started;
+    int completed;
+    int abandoned;
+    int completedWithoutAttempt;
+    int solveAttempts;
+    int failedAttempts;
+    int retriesBeforeDone;
+    long totalTimeToDone;
+
+    TaskFunnel(int task) {
+        this.task = task;
+    }
+
+    public int getTask() {
+        return task;
+    }
+
+    /**
+     * Number of attempts at the task. An attempt starts with the first SOLVE_TASK of a session,
+     * or the first one after the task was done, and lasts until the task is done or the session ends.
+     */
+    public int getStarted() {
+        return started;
+    }
+
+    /**
+     * Number of attempts that ended with a successful DONE_TASK.
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Number of attempts that were still open when their session ended.
+     */
+    public int getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Number of successful DONE_TASK records without a preceding attempt in the same session.
+     */
+    public int getCompletedWithoutAttempt() {
+        return completedWithoutAttempt;
+    }
+
+    public int getSolveAttempts() {
+        return solveAttempts;
+    }
+
+    /**
+     * Number of SOLVE_TASK and DONE_TASK records whose status is not OK.
+     */
+    public int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    public double getConversionRate() {
+        return started == 0 ? 0 : (double) completed / started;
+    }
+
+    /**
+     * Average time in milliseconds from the first attempt to the successful DONE_TASK.
+     */
+    public long getAverageTimeToDone() {
+        return completed == 0 ? 0 : totalTimeToDone / completed;
+    }
+
+    /**
+     * Average number of failed attempts before the successful DONE_TASK.
+     */
+    public double getAverageRetriesBeforeDone() {
+        return completed == 0 ? 0 : (double) retriesBeforeDone / completed;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskFunnel{" +
+                "task=" + task +
+                ", started=" + started +
+                ", completed=" + completed +
+                ", abandoned=" + abandoned +
+                ", completedWithoutAttempt=" + completedWithoutAttempt +
+                ", solveAttempts=" + solveAttempts +
+                ", failedAttempts=" + failedAttempts +
+                ", averageTimeToDone=" + getAverageTimeToDone() +
+                ", averageRetriesBeforeDone=" + getAverageRetriesBeforeDone() +
+                '}';
+    }
+}
@@ -1,9 +1,11 @@
 package com.javarush.task.task39.task3913.query;
 
 import com.artem.logparser.Event;
+import com.artem.logparser.Interval;
 
 import java.util.Date;
 import java.util.Set;
+import java.util.SortedMap;
 
 public interface DateQuery {
     Set<Date> getDatesForUserAndEvent(String user, Event event, Date after, Date before);
@@ -21,4 +23,6 @@ public interface DateQuery {
     Set<Date> getDatesWhenUserWroteMessage(String user, Date after, Date before);
 
     Set<Date> getDatesWhenUserDownloadedPlugin(String user, Date after, Date before);
+
+    SortedMap<Date, Integer> getNumberOfDatesForUserAndEventPerInterval(String user, Event event, Interval interval, Date after, Date before);
 }
\ No newline at end of file
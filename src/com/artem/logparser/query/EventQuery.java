@@ -1,10 +1,13 @@
 package com.javarush.task.task39.task3913.query;
 
 import com.artem.logparser.Event;
+import com.artem.logparser.Interval;
+import com.artem.logparser.Status;
 
 import java.util.Date;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 
 public interface EventQuery {
     int getNumberOfAllEvents(Date after, Date before);
@@ -26,4 +29,10 @@ public interface EventQuery {
     Map<Integer, Integer> getAllSolvedTasksAndTheirNumber(Date after, Date before);
 
     Map<Integer, Integer> getAllDoneTasksAndTheirNumber(Date after, Date before);
+
+    SortedMap<Date, Integer> getNumberOfEventsPerInterval(Interval interval, Date after, Date before);
+
+    SortedMap<Date, Map<Event, Integer>> getNumberOfEventsPerIntervalByEvent(Interval interval, Date after, Date before);
+
+    SortedMap<Date, Map<Status, Integer>> getNumberOfEventsPerIntervalByStatus(Interval interval, Date after, Date before);
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.artem.logparser.query;
+
+import com.artem.logparser.analytics.TaskFunnel;
+
+import java.util.Date;
+import java.util.Map;
+
+public interface SessionQuery {
+    int getNumberOfSessions(long inactivityGap, Date after, Date before);
+
+    Map<String, Integer> getNumberOfSessionsPerUser(long inactivityGap, Date after, Date before);
+
+    long getAverageSessionDuration(long inactivityGap, Date after, Date before);
+
+    Map<Integer, TaskFunnel> getTaskFunnels(long inactivityGap, Date after, Date before);
+}